@@ -23,4 +23,29 @@ public class Constants {
      * available number of seeds
      */
     public static final String KEY_PLAYER_SEEDS = "key_player_seeds";
+
+    /**
+     * Base URL of the purchase verification service (see the verifier module), e.g.
+     * "https://verify.example.com". It must use https. When empty, purchases are verified
+     * on the device with {@link PurchaseValidator} instead.
+     */
+    public static final String VERIFICATION_SERVER_URL = "";
+
+    /**
+     * The base64 encoded X.509 public key the verification service signs its replies with.
+     * Required when {@link #VERIFICATION_SERVER_URL} is set.
+     */
+    public static final String VERIFICATION_SERVER_PUBLIC_KEY = "";
+
+    /**
+     * Whether the memory accounting of {@link MemoryTracker} is on. When it is, a memory dump
+     * is written every time the game is paused. This is a diagnostic aid, only enable it in
+     * builds used for memory measurements; when it is off the tracking costs nothing.
+     */
+    public static final boolean MEMORY_TRACKING_ENABLED = false;
+
+    /**
+     * The name of the memory dump file in the app's files directory
+     */
+    public static final String MEMORY_DUMP_FILE = "memory_dump.txt";
 }
@@ -20,6 +20,8 @@ import static com.flexion.funflowers.Constants.ITEM_ID_SEEDS;
 import static com.flexion.funflowers.Constants.KEY_PLAYER_SEEDS;
 import static com.flexion.funflowers.Constants.PLAYER_STARTING_SEEDS;
 import static com.flexion.funflowers.Constants.SEEDS_PER_PURCHASE;
+import static com.flexion.funflowers.Constants.VERIFICATION_SERVER_PUBLIC_KEY;
+import static com.flexion.funflowers.Constants.VERIFICATION_SERVER_URL;
 
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -29,6 +31,9 @@ import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
+import com.flexion.funflowers.MemoryTracker.AllocationSample;
+import com.flexion.funflowers.MemoryTracker.Subsystem;
+
 import com.flexionmobile.ddpx.listener.ConnectionStateListener;
 import com.flexionmobile.ddpx.listener.PurchasesUpdateListener;
 import com.flexionmobile.ddpx.model.BillingResult;
@@ -81,7 +86,7 @@ import java.util.Map;
  * we have to apply its effects to our world and consume it. This
  * is also very important!<br><br>
  */
-public class FlowerActivity extends Activity implements PurchasesUpdateListener {
+public class FlowerActivity extends Activity implements PurchasesUpdateListener, PurchaseVerificationClient.Listener {
 
     /**
      * The tag used to mark log messages from this class
@@ -113,6 +118,11 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
      */
     private BillingService billingService;
 
+    /**
+     * The client for the purchase verification server, null if purchases are verified on the device
+     */
+    private PurchaseVerificationClient verificationClient;
+
     /**
      * The map containing the cached product details
      */
@@ -126,6 +136,16 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
         setContentView(R.layout.activity_flower);
         setWaitScreen(true);
 
+        if (!VERIFICATION_SERVER_URL.isEmpty()) {
+            try {
+                verificationClient = new PurchaseVerificationClient(VERIFICATION_SERVER_URL, VERIFICATION_SERVER_PUBLIC_KEY, this);
+            } catch (Exception e) {
+                // Purchases stay unconsumed until the configuration is fixed
+                Log.e(TAG, "Could not create the verification client", e);
+                complain("Purchase verification is not configured correctly: " + e.getMessage());
+            }
+        }
+
         // This method initializes the Flexion SDK, it makes a network call to the Flexion platform and
         // downloads the required data to show the Flexion screens later. It could take several seconds depending on the network quality.
         // The downloaded content is cached, they are not downloaded on every start only if they were changed on the Flexion platform.
@@ -218,12 +238,16 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
         super.onPause();
 
         saveData();
+        MemoryTracker.dump(this);
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
 
+        if (verificationClient != null) {
+            verificationClient.shutdown();
+        }
         saveData();
     }
 
@@ -242,39 +266,76 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
     }
 
     // Validate, award and consume purchase. This purchase validation is only for the sample app, it's an extremely bad idea to use client side validation.
-    // You should use your own server side validation instead.
+    // You should use your own server side validation instead, see the verifier module and VERIFICATION_SERVER_URL.
     // Flexion does not offer a server-to-server consumption api at the moment, since not all stores support it.
     // It's not necessary but recommended to track purchase consumption and awarding on your server side and only consume purchases on client side
     // when you successfully awarded the item.
     private void handleSuccess(Purchase purchase) {
-        if (validatePurchase(purchase)) {
-            String itemId = purchase.getProducts().get(0);
-            if (itemId.equals(ITEM_ID_SEEDS)) {
-                Log.i(TAG, "Purchase is seeds. Starting seed consumption.");
-
-                // Consume purchase
-                if (billingService != null) {
-                    billingService.consumeAsync(new ConsumeParams(purchase.getToken()), billingResult -> {
-                        if (billingResult.getResponseCode() == BillingResults.ResultCode.CONSUME_SUCCESS_CODE) {
-                            mPlayerSeeds = mPlayerSeeds + SEEDS_PER_PURCHASE;
-                            saveData();
-                            displayAlert("You purchased " + SEEDS_PER_PURCHASE + " seeds!\n\n"
-                                    + "You now have " + mPlayerSeeds + " seeds to grow flowers with!");
-                            updateUi();
-                            Log.i(TAG, "Consumption successful");
-                        } else {
-                            complain("Consume error: " + billingResult.getDebugMessage());
-                        }
-                    });
-                }
-            } else {
-                complain("Unknown item id: " + purchase.getProducts().get(0));
+        if (!VERIFICATION_SERVER_URL.isEmpty()) {
+            // The purchase is awarded in onPurchaseVerified once the server has checked it
+            if (verificationClient != null) {
+                verificationClient.verify(purchase);
             }
+        } else if (validatePurchase(purchase)) {
+            awardPurchase(purchase);
         }
 
         setWaitScreen(false);
     }
 
+    // Callbacks from the verification server client. They arrive on a background thread, so they are
+    // moved to the UI thread where the player's seeds are changed, and dropped once the activity is gone.
+    @Override
+    public void onPurchaseVerified(Purchase purchase, boolean valid) {
+        runOnUiThread(() -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            if (valid) {
+                displayToast("Successful purchase validation", Toast.LENGTH_LONG);
+                awardPurchase(purchase);
+            } else {
+                complain("Invalid purchase");
+            }
+        });
+    }
+
+    // The purchases stay unconsumed and will be verified again on the next start
+    @Override
+    public void onVerificationUnavailable(List<Purchase> purchases) {
+        runOnUiThread(() -> {
+            if (!isFinishing() && !isDestroyed()) {
+                complain("Could not verify " + purchases.size() + " purchase(s), please try again later");
+            }
+        });
+    }
+
+    private void awardPurchase(Purchase purchase) {
+        String itemId = purchase.getProducts().get(0);
+        if (itemId.equals(ITEM_ID_SEEDS)) {
+            Log.i(TAG, "Purchase is seeds. Starting seed consumption.");
+            AllocationSample sample = MemoryTracker.startSample(MemoryTracker.PATH_PURCHASE);
+
+            // Consume purchase
+            if (billingService != null) {
+                billingService.consumeAsync(new ConsumeParams(purchase.getToken()), billingResult -> {
+                    if (billingResult.getResponseCode() == BillingResults.ResultCode.CONSUME_SUCCESS_CODE) {
+                        mPlayerSeeds = mPlayerSeeds + SEEDS_PER_PURCHASE;
+                        saveData();
+                        displayAlert("You purchased " + SEEDS_PER_PURCHASE + " seeds!\n\n"
+                                + "You now have " + mPlayerSeeds + " seeds to grow flowers with!");
+                        updateUi(sample);
+                        Log.i(TAG, "Consumption successful");
+                    } else {
+                        complain("Consume error: " + billingResult.getDebugMessage());
+                    }
+                });
+            }
+        } else {
+            complain("Unknown item id: " + purchase.getProducts().get(0));
+        }
+    }
+
     private void handleError(String debugMessage) {
         complain("Purchase error: " + debugMessage);
         setWaitScreen(false);
@@ -298,6 +359,7 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
             if (billingResult.getResponseCode() == BillingResults.ResultCode.QUERY_PRODUCT_DETAILS_SUCCESS_CODE) {
                 Log.i(TAG, "QueryProductDetails successful");
                 details.forEach(pd -> productDetails.put(pd.getId(), pd));
+                MemoryTracker.record(Subsystem.BILLING, "productDetails", MemoryTracker.UNKNOWN_BYTES, productDetails.size());
 
                 updateUi();
             } else {
@@ -334,6 +396,8 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
             return;
         }
 
+        AllocationSample sample = MemoryTracker.startSample(MemoryTracker.PATH_GROW);
+
         // Pick new flower parts to be displayed
         int[] flowerPartIds = FlowerPicker.pickFlowerParts();
         mCurrentFlowerTopId = flowerPartIds[0];
@@ -346,7 +410,7 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
         mPlayerSeeds--;
 
         saveData();
-        updateUi();
+        updateUi(sample);
 
         // Log the player's new balance
         Log.i(TAG, "The player now has " + mPlayerSeeds + " seeds");
@@ -390,6 +454,11 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
         UpdateUISupport.updateUi(this);
     }
 
+    // Updates the UI to reflect the model and ends the allocation sample once done
+    private void updateUi(AllocationSample sample) {
+        UpdateUISupport.updateUi(this, sample);
+    }
+
     /**
      * Enables or disables the "please wait" screen.
      */
@@ -420,7 +489,9 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
     private void info(final String message) {
         runOnUiThread(() -> {
             Log.i(TAG, "**** Fun Flowers Info: " + message);
-            Toast.makeText(FlowerActivity.this, message, Toast.LENGTH_LONG).show();
+            Toast toast = Toast.makeText(FlowerActivity.this, message, Toast.LENGTH_LONG);
+            MemoryTracker.trackObject(Subsystem.UI, "Toast", toast);
+            toast.show();
         });
     }
 
@@ -435,7 +506,9 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
             builder.setMessage(message);
             builder.setNeutralButton("OK", null);
             Log.i(TAG, "Showing alert dialog: " + message);
-            builder.create().show();
+            AlertDialog dialog = builder.create();
+            MemoryTracker.trackObject(Subsystem.UI, "AlertDialog", dialog);
+            dialog.show();
         });
     }
 
@@ -445,7 +518,11 @@ public class FlowerActivity extends Activity implements PurchasesUpdateListener
      * @param message - The toast message to display
      */
     private void displayToast(String message, int duration) {
-        runOnUiThread(() -> Toast.makeText(FlowerActivity.this, message, duration).show());
+        runOnUiThread(() -> {
+            Toast toast = Toast.makeText(FlowerActivity.this, message, duration);
+            MemoryTracker.trackObject(Subsystem.UI, "Toast", toast);
+            toast.show();
+        });
     }
 
     /**
@@ -47,6 +47,7 @@ public class FlowerPicker {
      * are for the top and bottom of the flower, in that order.
      */
     protected static int[] pickFlowerParts() {
+        MemoryTracker.countAllocation(MemoryTracker.Subsystem.UI, "FlowerPicker");
 
         // Pick a top and a bottom for the flower
         Random random = new Random();
@@ -0,0 +1,430 @@
+/*
+ * Fun Flowers copyright 2025 Flexion Mobile Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flexion.funflowers;
+
+import static com.flexion.funflowers.Constants.MEMORY_TRACKING_ENABLED;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Memory accounting for the app's subsystems.<br><br>
+ * <p>
+ * For every {@link Subsystem} this keeps named entries with a size in bytes and a
+ * number of live objects. Sizes are reported by the code that owns the memory (e.g.
+ * the decoded bitmaps of the image views). Short lived objects such as dialogs and
+ * toasts are tracked with weak references, so they count as live until they have
+ * been garbage collected. Every tracked object is also added to a running total of
+ * created objects, which shows how much garbage a subsystem produces.<br><br>
+ * <p>
+ * The allocation rate of a code path is sampled with {@link #startSample(String)}
+ * using the runtime's allocated bytes counter. That counter is process wide, so
+ * allocations made by other threads (e.g. the billing SDK) during the sample are
+ * included as well.<br><br>
+ * <p>
+ * {@link #dump(Activity)} writes everything as sorted "key=value" lines, so dumps
+ * from different releases and devices can be compared with diff. The persistence
+ * stats are only collected for the dump, so the sampled paths are not affected.
+ * Sizes that are not measured, such as those of dialogs and toasts, are written
+ * as "-".<br><br>
+ * <p>
+ * Everything is disabled unless {@link Constants#MEMORY_TRACKING_ENABLED} is set,
+ * in which case the methods return straight away and nothing is recorded.
+ */
+final class MemoryTracker {
+
+    private static final String TAG = "MemoryTracker";
+
+    /**
+     * The path sampled from a click on "grow flower" until the new flower is shown
+     */
+    static final String PATH_GROW = "grow";
+
+    /**
+     * The path sampled from awarding a verified purchase until the player was given the seeds
+     */
+    static final String PATH_PURCHASE = "purchase";
+
+    /**
+     * Shown instead of a size for entries that only count objects
+     */
+    static final long UNKNOWN_BYTES = -1;
+
+    /**
+     * The runtime stat with the total number of bytes allocated by the process
+     */
+    private static final String STAT_BYTES_ALLOCATED = "art.gc.bytes-allocated";
+
+    enum Subsystem {
+        IMAGES,
+        BILLING,
+        UI,
+        PERSISTENCE
+    }
+
+    /**
+     * The entries reported by each subsystem, keyed by name
+     */
+    private static final Map<Subsystem, Map<String, Entry>> entries = new EnumMap<>(Subsystem.class);
+
+    /**
+     * Short lived objects that are counted as live until they are garbage collected
+     */
+    private static final List<TrackedObject> trackedObjects = new ArrayList<>();
+
+    /**
+     * The allocation statistics of the sampled paths, keyed by path
+     */
+    private static final Map<String, PathStats> pathStats = new TreeMap<>();
+
+    /**
+     * Runs the slow part of {@link #dump(Activity)} off the UI thread
+     */
+    private static final ExecutorService dumpExecutor = Executors.newSingleThreadExecutor();
+
+    static {
+        for (Subsystem subsystem : Subsystem.values()) {
+            entries.put(subsystem, new TreeMap<>());
+        }
+    }
+
+    private MemoryTracker() {
+    }
+
+    /**
+     * Records the current size of a subsystem entry, replacing the previous value
+     *
+     * @param bytes       - The size in bytes, or {@link #UNKNOWN_BYTES}
+     * @param liveObjects - The number of objects the entry is made of
+     */
+    static void record(Subsystem subsystem, String name, long bytes, int liveObjects) {
+        if (!MEMORY_TRACKING_ENABLED) {
+            return;
+        }
+        synchronized (MemoryTracker.class) {
+            Entry entry = entry(subsystem, name);
+            entry.bytes = bytes;
+            entry.liveObjects = liveObjects;
+        }
+    }
+
+    /**
+     * Counts an object as live until it is garbage collected
+     */
+    static void trackObject(Subsystem subsystem, String name, Object object) {
+        if (!MEMORY_TRACKING_ENABLED) {
+            return;
+        }
+        synchronized (MemoryTracker.class) {
+            entry(subsystem, name).created++;
+            pruneCollectedObjects();
+            trackedObjects.add(new TrackedObject(subsystem, name, object));
+        }
+    }
+
+    /**
+     * Counts the creation of a short lived object without following its lifetime.
+     * Used on hot paths where a weak reference would cost more than the object itself.
+     */
+    static void countAllocation(Subsystem subsystem, String name) {
+        if (!MEMORY_TRACKING_ENABLED) {
+            return;
+        }
+        synchronized (MemoryTracker.class) {
+            entry(subsystem, name).created++;
+        }
+    }
+
+    /**
+     * Records the decoded bitmaps shown by the image views below the given view. A
+     * bitmap that is shown by several image views is only counted once.
+     */
+    static void recordImages(View root) {
+        if (!MEMORY_TRACKING_ENABLED) {
+            return;
+        }
+        Map<String, Entry> images = new TreeMap<>();
+        collectImages(root, images, new IdentityHashMap<>());
+        synchronized (MemoryTracker.class) {
+            entries.get(Subsystem.IMAGES).clear();
+            entries.get(Subsystem.IMAGES).putAll(images);
+        }
+    }
+
+    /**
+     * Starts an allocation sample for a code path. Call {@link AllocationSample#end()}
+     * when the path has finished, a sample that is never ended is ignored.
+     */
+    static AllocationSample startSample(String path) {
+        if (!MEMORY_TRACKING_ENABLED) {
+            return AllocationSample.NONE;
+        }
+        return new AllocationSample(path, bytesAllocated(), SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * Creates the memory dump and writes it to the log and to {@link Constants#MEMORY_DUMP_FILE}
+     * in the app's files directory. Must be called on the UI thread, only the image views are
+     * inspected there. Reading the process memory stats and writing the file happen on a
+     * background thread.
+     */
+    static void dump(Activity activity) {
+        if (!MEMORY_TRACKING_ENABLED) {
+            return;
+        }
+        recordImages(activity.getWindow().getDecorView());
+
+        // getPreferences() stores the data in a file named after the activity
+        SharedPreferences preferences = activity.getPreferences(Activity.MODE_PRIVATE);
+        File preferencesFile = new File(activity.getDataDir(), "shared_prefs/" + activity.getLocalClassName() + ".xml");
+        Context context = activity.getApplicationContext();
+        dumpExecutor.execute(() -> writeDump(context, preferences, preferencesFile));
+    }
+
+    private static void writeDump(Context context, SharedPreferences preferences, File preferencesFile) {
+        record(Subsystem.PERSISTENCE, "sharedPreferences", preferencesFile.length(), preferences.getAll().size());
+
+        Map<String, String> values = new TreeMap<>();
+        values.put("device.model", Build.MANUFACTURER + " " + Build.MODEL);
+        values.put("device.sdk", String.valueOf(Build.VERSION.SDK_INT));
+        values.put("app.version", appVersion(context));
+
+        Runtime runtime = Runtime.getRuntime();
+        values.put("process.java-heap-used", String.valueOf(runtime.totalMemory() - runtime.freeMemory()));
+        values.put("process.java-heap-max", String.valueOf(runtime.maxMemory()));
+        values.put("process.native-heap-allocated", String.valueOf(Debug.getNativeHeapAllocatedSize()));
+        Debug.MemoryInfo memoryInfo = new Debug.MemoryInfo();
+        Debug.getMemoryInfo(memoryInfo);
+        for (String stat : new String[]{"summary.java-heap", "summary.native-heap", "summary.graphics", "summary.total-pss"}) {
+            // In kB, as reported by the system
+            values.put("process." + stat.substring("summary.".length()) + "-kb", String.valueOf(memoryInfo.getMemoryStat(stat)));
+        }
+
+        synchronized (MemoryTracker.class) {
+            pruneCollectedObjects();
+            Map<Subsystem, Map<String, Integer>> liveTracked = new EnumMap<>(Subsystem.class);
+            for (TrackedObject tracked : trackedObjects) {
+                liveTracked.computeIfAbsent(tracked.subsystem, s -> new TreeMap<>()).merge(tracked.name, 1, Integer::sum);
+            }
+
+            for (Subsystem subsystem : Subsystem.values()) {
+                String prefix = subsystem.name().toLowerCase(Locale.ROOT) + ".";
+                Map<String, Integer> trackedCounts = liveTracked.getOrDefault(subsystem, Collections.emptyMap());
+                long totalBytes = 0;
+                boolean sizesComplete = true;
+                int totalLive = 0;
+                for (Map.Entry<String, Entry> e : entries.get(subsystem).entrySet()) {
+                    Entry entry = e.getValue();
+                    int live = entry.liveObjects + trackedCounts.getOrDefault(e.getKey(), 0);
+                    values.put(prefix + e.getKey() + ".bytes", entry.bytes == UNKNOWN_BYTES ? "-" : String.valueOf(entry.bytes));
+                    values.put(prefix + e.getKey() + ".live", String.valueOf(live));
+                    values.put(prefix + e.getKey() + ".created", String.valueOf(entry.created));
+                    if (entry.bytes == UNKNOWN_BYTES) {
+                        sizesComplete = false;
+                    } else {
+                        totalBytes += entry.bytes;
+                    }
+                    totalLive += live;
+                }
+                // A total that leaves out unmeasured entries would look like a measurement,
+                // so only the sum of the measured entries is given in that case
+                values.put(prefix + "total.bytes", sizesComplete ? String.valueOf(totalBytes) : "-");
+                values.put(prefix + "total.bytes-measured", String.valueOf(totalBytes));
+                values.put(prefix + "total.live", String.valueOf(totalLive));
+            }
+
+            for (Map.Entry<String, PathStats> e : pathStats.entrySet()) {
+                PathStats stats = e.getValue();
+                String prefix = "alloc." + e.getKey() + ".";
+                values.put(prefix + "samples", String.valueOf(stats.samples));
+                values.put(prefix + "bytes", String.valueOf(stats.bytes));
+                values.put(prefix + "bytes-per-run", String.valueOf(stats.bytes / stats.samples));
+                values.put(prefix + "bytes-per-second", String.valueOf(stats.nanos > 0 ? stats.bytes * 1_000_000_000L / stats.nanos : 0));
+                values.put(prefix + "avg-ms", String.valueOf(stats.nanos / stats.samples / 1_000_000));
+            }
+        }
+
+        StringBuilder dump = new StringBuilder();
+        values.forEach((key, value) -> dump.append(key).append('=').append(value).append('\n'));
+        String text = dump.toString();
+
+        Log.i(TAG, "Memory dump:\n" + text);
+        try (FileOutputStream out = context.openFileOutput(Constants.MEMORY_DUMP_FILE, Context.MODE_PRIVATE)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.e(TAG, "Could not write the memory dump", e);
+        }
+    }
+
+    private static Entry entry(Subsystem subsystem, String name) {
+        return entries.get(subsystem).computeIfAbsent(name, n -> new Entry());
+    }
+
+    private static void pruneCollectedObjects() {
+        Iterator<TrackedObject> iterator = trackedObjects.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().reference.get() == null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void collectImages(View view, Map<String, Entry> images, Map<Bitmap, Boolean> seen) {
+        if (view instanceof ImageView) {
+            Drawable drawable = ((ImageView) view).getDrawable();
+            if (drawable instanceof BitmapDrawable) {
+                Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+                if (bitmap != null && seen.put(bitmap, Boolean.TRUE) == null) {
+                    Entry entry = images.computeIfAbsent(imageName(view), n -> new Entry());
+                    entry.bytes = Math.max(entry.bytes, 0);
+                    entry.bytes += bitmap.getAllocationByteCount();
+                    entry.liveObjects++;
+                }
+            }
+        } else if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                collectImages(group.getChildAt(i), images, seen);
+            }
+        }
+    }
+
+    /**
+     * @return The id of the image view, or the id of its parent with the view's position
+     * for image views without an id
+     */
+    private static String imageName(View view) {
+        if (view.getId() != View.NO_ID) {
+            return view.getResources().getResourceEntryName(view.getId());
+        }
+        if (view.getParent() instanceof ViewGroup) {
+            ViewGroup parent = (ViewGroup) view.getParent();
+            if (parent.getId() != View.NO_ID) {
+                return parent.getResources().getResourceEntryName(parent.getId()) + "#" + parent.indexOfChild(view);
+            }
+        }
+        return "unnamed";
+    }
+
+    private static long bytesAllocated() {
+        String value = Debug.getRuntimeStat(STAT_BYTES_ALLOCATED);
+        return value != null ? Long.parseLong(value) : 0;
+    }
+
+    private static String appVersion(Context context) {
+        try {
+            PackageInfo packageInfo = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            // getLongVersionCode() needs API 28
+            @SuppressWarnings("deprecation")
+            int versionCode = packageInfo.versionCode;
+            return packageInfo.versionName + " (" + versionCode + ")";
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * An allocation sample of a code path, see {@link #startSample(String)}
+     */
+    static final class AllocationSample {
+
+        /**
+         * The sample handed out while tracking is disabled, ending it does nothing
+         */
+        static final AllocationSample NONE = new AllocationSample(null, 0, 0);
+
+        private final String path;
+
+        private final long startBytes;
+
+        private final long startNanos;
+
+        private AllocationSample(String path, long startBytes, long startNanos) {
+            this.path = path;
+            this.startBytes = startBytes;
+            this.startNanos = startNanos;
+        }
+
+        void end() {
+            if (path == null) {
+                return;
+            }
+            long bytes = bytesAllocated() - startBytes;
+            long nanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+            synchronized (MemoryTracker.class) {
+                PathStats stats = pathStats.computeIfAbsent(path, p -> new PathStats());
+                stats.samples++;
+                stats.bytes += bytes;
+                stats.nanos += nanos;
+            }
+        }
+    }
+
+    private static final class Entry {
+        long bytes = UNKNOWN_BYTES;
+        int liveObjects;
+        long created;
+    }
+
+    private static final class PathStats {
+        long samples;
+        long bytes;
+        long nanos;
+    }
+
+    private static final class TrackedObject {
+        final Subsystem subsystem;
+        final String name;
+        final WeakReference<Object> reference;
+
+        TrackedObject(Subsystem subsystem, String name, Object object) {
+            this.subsystem = subsystem;
+            this.name = name;
+            this.reference = new WeakReference<>(object);
+        }
+    }
+}
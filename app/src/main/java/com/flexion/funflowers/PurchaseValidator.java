@@ -15,7 +15,10 @@ import java.security.spec.X509EncodedKeySpec;
  * example, this code is included here and is executed on the device. If you
  * must verify the purchases on the phone, you should obfuscate this code to
  * make it harder for an attacker to replace the code with stubs that treat all
- * purchases as verified.
+ * purchases as verified.<br><br>
+ * <p>
+ * The verifier module contains a server version of this check. Set
+ * {@link Constants#VERIFICATION_SERVER_URL} to use it from the app.
  */
 public class PurchaseValidator {
 
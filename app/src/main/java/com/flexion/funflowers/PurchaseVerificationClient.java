@@ -0,0 +1,281 @@
+/*
+ * Fun Flowers copyright 2025 Flexion Mobile Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flexion.funflowers;
+
+import android.util.Base64;
+import android.util.Log;
+
+import com.flexionmobile.ddpx.model.Purchase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client for the purchase verification service in the verifier module.<br><br>
+ * <p>
+ * Purchases passed to {@link #verify(Purchase)} are collected for a short while and
+ * then sent to the server in batches, so that e.g. all the unconsumed purchases
+ * returned on startup go out in a single request. A purchase that is queued again
+ * before it was sent is only sent once.<br><br>
+ * <p>
+ * The server signs every reply, and the signature covers the request that was sent,
+ * so a stubbed or intercepted reply is treated as if the server was unavailable. Only
+ * https URLs are accepted. Note that this still leaves the decision to award the
+ * purchase on the device: an attacker who patches the app can skip this check just
+ * like the one in {@link PurchaseValidator}. For real protection the server should
+ * keep track of the purchases and award them itself.<br><br>
+ * <p>
+ * The listener is called on a background thread. It is not called after {@link #shutdown()}
+ * once a running request has finished, but a call that was already under way may still
+ * arrive, so the listener has to check that it is still interested.
+ */
+class PurchaseVerificationClient {
+
+    private static final String TAG = "PurchaseVerification";
+
+    /**
+     * How long purchases are collected before a batch is sent
+     */
+    private static final long BATCH_DELAY_MS = 200;
+
+    /**
+     * The maximum number of purchases per request, this is the server's limit
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static final int TIMEOUT_MS = 10_000;
+
+    /**
+     * The start of the line that carries the server's signature of the batch
+     */
+    private static final String SIGNATURE_PREFIX = "SIGNATURE\t";
+
+    /**
+     * The algorithm the server signs its replies with
+     */
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+    interface Listener {
+        /**
+         * Called for every purchase the server gave a verdict for
+         */
+        void onPurchaseVerified(Purchase purchase, boolean valid);
+
+        /**
+         * Called once per batch when the server could not be reached or its reply could
+         * not be trusted. The purchases should be left unconsumed so they are verified
+         * again on the next start.
+         */
+        void onVerificationUnavailable(List<Purchase> purchases);
+    }
+
+    private final String batchUrl;
+
+    private final PublicKey serverPublicKey;
+
+    private final Listener listener;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Set by {@link #shutdown()}, a request that is still running when it is set is not reported
+     */
+    private volatile boolean closed;
+
+    /**
+     * The purchases waiting to be sent, keyed by purchase token
+     */
+    private final Map<String, Purchase> pending = new LinkedHashMap<>();
+
+    /**
+     * @param serverUrl          - The https base URL of the server
+     * @param b64ServerPublicKey - The base64 encoded X.509 public key the server signs its replies with
+     */
+    PurchaseVerificationClient(String serverUrl, String b64ServerPublicKey, Listener listener) throws GeneralSecurityException {
+        if (!serverUrl.startsWith("https://")) {
+            throw new IllegalArgumentException("The verification server URL must use https: " + serverUrl);
+        }
+        this.batchUrl = serverUrl + "/verify/batch";
+        byte[] decodedKey = Base64.decode(b64ServerPublicKey, Base64.DEFAULT);
+        this.serverPublicKey = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(decodedKey));
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a purchase for verification
+     */
+    void verify(Purchase purchase) {
+        synchronized (pending) {
+            boolean flushScheduled = !pending.isEmpty();
+            pending.put(purchase.getToken(), purchase);
+            if (!flushScheduled && !closed) {
+                // closed is only set while holding the lock, so the executor is still running here
+                executor.schedule(this::flush, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stops the client. Purchases that were not sent yet, or whose request is still
+     * running, are not reported. They stay unconsumed and will be returned by
+     * queryPurchases again.
+     */
+    void shutdown() {
+        synchronized (pending) {
+            closed = true;
+            pending.clear();
+        }
+        executor.shutdownNow();
+    }
+
+    private void flush() {
+        List<Purchase> purchases;
+        synchronized (pending) {
+            purchases = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+
+        for (int from = 0; from < purchases.size() && !closed; from += MAX_BATCH_SIZE) {
+            sendBatch(purchases.subList(from, Math.min(from + MAX_BATCH_SIZE, purchases.size())));
+        }
+    }
+
+    private void sendBatch(List<Purchase> batch) {
+        StringBuilder body = new StringBuilder();
+        for (Purchase purchase : batch) {
+            String b64Json = Base64.encodeToString(purchase.getPurchaseJson().getBytes(StandardCharsets.UTF_8), Base64.NO_WRAP);
+            // The device check accepts signatures with line breaks, they would break the line format
+            String b64Signature = purchase.getSignature().replaceAll("\\s", "");
+            body.append(purchase.getToken()).append('\t').append(b64Json).append('\t').append(b64Signature).append('\n');
+        }
+
+        Log.i(TAG, "Sending " + batch.size() + " purchases for verification");
+        Map<String, Boolean> verdicts;
+        try {
+            verdicts = post(body.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | GeneralSecurityException e) {
+            Log.e(TAG, "Purchase verification request failed", e);
+            verdicts = new HashMap<>();
+        }
+
+        // The activity may be gone by now
+        if (closed) {
+            return;
+        }
+
+        List<Purchase> unavailable = new ArrayList<>();
+        for (Purchase purchase : batch) {
+            Boolean valid = verdicts.get(purchase.getToken());
+            if (valid != null) {
+                listener.onPurchaseVerified(purchase, valid);
+            } else {
+                unavailable.add(purchase);
+            }
+        }
+        if (!unavailable.isEmpty()) {
+            listener.onVerificationUnavailable(unavailable);
+        }
+    }
+
+    /**
+     * @return The verdicts keyed by purchase token, a MALFORMED verdict counts as invalid
+     */
+    private Map<String, Boolean> post(byte[] body) throws IOException, GeneralSecurityException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(batchUrl).openConnection();
+        byte[] reply;
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response code " + status);
+            }
+            reply = readAll(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+
+        // The reply is "token TAB verdict" lines followed by a "SIGNATURE TAB signature" line
+        String text = new String(reply, StandardCharsets.UTF_8);
+        int signatureStart = text.lastIndexOf(SIGNATURE_PREFIX);
+        if (signatureStart < 0 || (signatureStart > 0 && text.charAt(signatureStart - 1) != '\n')) {
+            throw new GeneralSecurityException("The reply is not signed");
+        }
+        String verdictLines = text.substring(0, signatureStart);
+        String b64Signature = text.substring(signatureStart + SIGNATURE_PREFIX.length()).trim();
+
+        Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+        signature.initVerify(serverPublicKey);
+        signature.update(body);
+        signature.update(verdictLines.getBytes(StandardCharsets.UTF_8));
+        byte[] decodedSignature;
+        try {
+            decodedSignature = Base64.decode(b64Signature, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("The reply signature is not valid base64", e);
+        }
+        if (!signature.verify(decodedSignature)) {
+            throw new GeneralSecurityException("The reply signature does not match");
+        }
+
+        Map<String, Boolean> verdicts = new HashMap<>();
+        for (String line : verdictLines.split("\n")) {
+            int tab = line.lastIndexOf('\t');
+            if (tab > 0) {
+                verdicts.put(line.substring(0, tab), line.substring(tab + 1).equals("VALID"));
+            }
+        }
+        return verdicts;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -13,12 +13,23 @@ class UpdateUISupport {
     private final FlowerActivity activity;
 
     static void updateUi(FlowerActivity activity) {
+        updateUi(activity, null);
+    }
+
+    /**
+     * @param sample - An allocation sample to end once the UI was updated, or null
+     */
+    static void updateUi(FlowerActivity activity, final MemoryTracker.AllocationSample sample) {
         final UpdateUISupport updateUISupport = new UpdateUISupport(activity);
+        MemoryTracker.countAllocation(MemoryTracker.Subsystem.UI, "UpdateUISupport");
         activity.runOnUiThread(new Runnable() {
             public void run() {
                 updateUISupport.displaySeedsButton();
                 updateUISupport.displayAvailableSeeds();
                 updateUISupport.updateUiFlowerGrownDependent();
+                if (sample != null) {
+                    sample.end();
+                }
             }
         });
     }
@@ -0,0 +1,207 @@
+/*
+ * Fun Flowers copyright 2025 Flexion Mobile Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flexion.funflowers.verifier;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for the verification service, runnable on localhost<br><br>
+ * <p>
+ * Starts a {@link VerificationServer} on a free local port with a freshly generated
+ * key pair, signs a pool of fake purchases with it, and has a number of concurrent
+ * clients post batches of those purchases. A share of the purchases reuse a token
+ * that was already sent, the way the app resends unconsumed purchases, so the
+ * idempotency cache is exercised as well.<br><br>
+ * <p>
+ * Options (all optional):<br>
+ * --clients N       concurrent clients, default 4<br>
+ * --batches N       batches sent by each client, default 250<br>
+ * --batch-size N    purchases per batch, default 20<br>
+ * --duplicates F    fraction of purchases that repeat an earlier token, default 0.2<br><br>
+ * <p>
+ * Run it with <code>./gradlew :verifier:loadTest -PloadTestArgs="--clients 8"</code>. It lives
+ * in its own source set so it is not part of the server distribution.
+ */
+public class VerificationLoadTest {
+
+    private int clients = 4;
+
+    private int batchesPerClient = 250;
+
+    private int batchSize = 20;
+
+    private double duplicateRatio = 0.2;
+
+    public static void main(String[] args) throws Exception {
+        VerificationLoadTest loadTest = new VerificationLoadTest();
+        loadTest.parseArgs(args);
+        loadTest.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--clients" -> clients = Integer.parseInt(args[i + 1]);
+                case "--batches" -> batchesPerClient = Integer.parseInt(args[i + 1]);
+                case "--batch-size" -> batchSize = Integer.parseInt(args[i + 1]);
+                case "--duplicates" -> duplicateRatio = Double.parseDouble(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (batchSize > BatchVerificationHandler.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("--batch-size must be at most " + BatchVerificationHandler.MAX_BATCH_SIZE);
+        }
+    }
+
+    private void run() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        VerificationServer server = new VerificationServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                new PurchaseVerifier(keyPair.getPublic()), new VerificationCache(VerificationServer.DEFAULT_CACHE_CAPACITY),
+                new VerdictSigner(VerdictSigner.generateKeyPair().getPrivate()));
+        server.start();
+
+        int totalPurchases = clients * batchesPerClient * batchSize;
+        List<String> lines = signPurchases(keyPair.getPrivate(), totalPurchases);
+        URI uri = URI.create("http://localhost:" + server.getPort() + VerificationServer.BATCH_PATH);
+        HttpClient httpClient = HttpClient.newHttpClient();
+
+        System.out.println("Sending " + clients + " x " + batchesPerClient + " batches of " + batchSize
+                + " purchases (" + totalPurchases + " purchases, " + (int) (duplicateRatio * 100) + "% repeated tokens)");
+
+        // Warm up the JIT and the connection pool so they don't skew the numbers
+        sendBatches(httpClient, uri, lines, Math.min(clients, 2), 20);
+        VerificationCache cache = server.getCache();
+        long warmupHits = cache.getHits();
+        long warmupMisses = cache.getMisses();
+
+        long[] latencies = new long[clients * batchesPerClient];
+        AtomicLong invalid = new AtomicLong();
+        ExecutorService clientThreads = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            final int client = c;
+            futures.add(clientThreads.submit(() -> {
+                for (int b = 0; b < batchesPerClient; b++) {
+                    int batchIndex = client * batchesPerClient + b;
+                    String body = String.join("\n", lines.subList(batchIndex * batchSize, (batchIndex + 1) * batchSize));
+                    long batchStart = System.nanoTime();
+                    String response = post(httpClient, uri, body);
+                    latencies[batchIndex] = System.nanoTime() - batchStart;
+                    invalid.addAndGet(response.lines()
+                            .filter(l -> !l.startsWith(BatchVerificationHandler.SIGNATURE_PREFIX))
+                            .filter(l -> !l.endsWith("\t" + Verdict.VALID))
+                            .count());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        clientThreads.shutdown();
+
+        Arrays.sort(latencies);
+        double seconds = elapsed / 1e9;
+        System.out.printf("Elapsed:        %.2f s%n", seconds);
+        System.out.printf("Throughput:     %.0f purchases/s, %.0f batches/s%n", totalPurchases / seconds, latencies.length / seconds);
+        System.out.printf("Batch latency:  p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        // Without the warmup requests, which all hit the cache
+        System.out.println("Cache:          " + (cache.getHits() - warmupHits) + " hits, " + (cache.getMisses() - warmupMisses) + " misses");
+        System.out.println("Not valid:      " + invalid.get());
+
+        server.stop();
+    }
+
+    /**
+     * Creates the batch lines for all purchases, repeating earlier lines for the duplicate share
+     */
+    private List<String> signPurchases(PrivateKey privateKey, int count) throws Exception {
+        Signature signature = Signature.getInstance(PurchaseVerifier.SIGNATURE_ALGORITHM);
+        Base64.Encoder encoder = Base64.getEncoder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && random.nextDouble() < duplicateRatio) {
+                lines.add(lines.get(random.nextInt(i)));
+                continue;
+            }
+            String token = "token-" + i;
+            String json = "{\"orderId\":\"order-" + i + "\",\"productId\":\"1023608\",\"purchaseToken\":\"" + token
+                    + "\",\"purchaseTime\":" + System.currentTimeMillis() + "}";
+            byte[] data = json.getBytes(StandardCharsets.UTF_8);
+            signature.initSign(privateKey);
+            signature.update(data);
+            lines.add(token + "\t" + encoder.encodeToString(data) + "\t" + encoder.encodeToString(signature.sign()));
+        }
+        return lines;
+    }
+
+    private void sendBatches(HttpClient httpClient, URI uri, List<String> lines, int threads, int batches) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int b = 0; b < batches; b++) {
+            String body = String.join("\n", lines.subList(0, batchSize));
+            futures.add(executor.submit(() -> post(httpClient, uri, body)));
+        }
+        for (Future<String> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private static String post(HttpClient httpClient, URI uri, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "text/plain; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
+}
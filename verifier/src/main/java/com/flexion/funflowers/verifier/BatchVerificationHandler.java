@@ -0,0 +1,212 @@
+/*
+ * Fun Flowers copyright 2025 Flexion Mobile Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flexion.funflowers.verifier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Handles batch verification requests.<br><br>
+ * <p>
+ * The request is a POST with a plain text body, one purchase per line:<br>
+ * <code>token TAB base64(purchase JSON) TAB base64 signature</code><br><br>
+ * <p>
+ * The response has one line per request line, in the same order, followed by
+ * the signature of the batch (see {@link VerdictSigner}):<br>
+ * <code>token TAB VALID|INVALID|MALFORMED</code><br>
+ * <code>SIGNATURE TAB base64 signature</code><br><br>
+ * <p>
+ * The purchase JSON is base64 encoded because it may contain tabs and new lines.
+ * The lines of a batch are verified in parallel on the worker pool. Requests with
+ * more than {@value #MAX_BATCH_SIZE} purchases or {@value #MAX_REQUEST_BYTES} bytes
+ * are rejected with 413.
+ */
+class BatchVerificationHandler implements HttpHandler {
+
+    private static final Logger LOG = Logger.getLogger(BatchVerificationHandler.class.getName());
+
+    /**
+     * The maximum number of purchases accepted in a single request
+     */
+    static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * The maximum size of a request body. A purchase line is well below 4 kB.
+     */
+    static final int MAX_REQUEST_BYTES = MAX_BATCH_SIZE * 4096;
+
+    /**
+     * The start of the line that carries the signature of the batch
+     */
+    static final String SIGNATURE_PREFIX = "SIGNATURE\t";
+
+    private final PurchaseVerifier verifier;
+
+    private final VerificationCache cache;
+
+    private final VerdictSigner signer;
+
+    private final ExecutorService workers;
+
+    BatchVerificationHandler(PurchaseVerifier verifier, VerificationCache cache, VerdictSigner signer, ExecutorService workers) {
+        this.verifier = verifier;
+        this.cache = cache;
+        this.signer = signer;
+        this.workers = workers;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            // The context matches by prefix, only the exact path is served
+            if (!VerificationServer.BATCH_PATH.equals(exchange.getRequestURI().getPath())) {
+                sendText(exchange, 404, "Not found\n");
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Only POST is supported\n");
+                return;
+            }
+
+            long contentLength;
+            try {
+                contentLength = contentLength(exchange);
+            } catch (NumberFormatException e) {
+                sendText(exchange, 400, "Invalid Content-Length\n");
+                return;
+            }
+
+            byte[] body = contentLength > MAX_REQUEST_BYTES ? null : readBody(exchange);
+            if (body == null) {
+                sendText(exchange, 413, "At most " + MAX_REQUEST_BYTES + " bytes per batch\n");
+                return;
+            }
+
+            List<String> lines = splitLines(body);
+            if (lines.size() > MAX_BATCH_SIZE) {
+                sendText(exchange, 413, "At most " + MAX_BATCH_SIZE + " purchases per batch\n");
+                return;
+            }
+
+            try {
+                byte[] verdictLines = verifyBatch(lines).getBytes(StandardCharsets.UTF_8);
+                sendText(exchange, 200, new String(verdictLines, StandardCharsets.UTF_8)
+                        + SIGNATURE_PREFIX + signer.sign(body, verdictLines) + "\n");
+            } catch (GeneralSecurityException e) {
+                LOG.log(Level.SEVERE, "Could not sign the verdicts", e);
+                sendText(exchange, 500, "Batch verification failed\n");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendText(exchange, 503, "Server is shutting down\n");
+            } catch (ExecutionException e) {
+                LOG.log(Level.SEVERE, "Batch verification failed", e.getCause());
+                sendText(exchange, 500, "Batch verification failed\n");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String verifyBatch(List<String> lines) throws InterruptedException, ExecutionException {
+        List<Future<String>> results = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            results.add(workers.submit(() -> verifyLine(line)));
+        }
+
+        StringBuilder response = new StringBuilder();
+        for (Future<String> result : results) {
+            response.append(result.get()).append('\n');
+        }
+        return response.toString();
+    }
+
+    private String verifyLine(String line) {
+        String[] fields = line.split("\t", -1);
+        String token = fields[0];
+        if (fields.length != 3 || token.isEmpty()) {
+            return token + "\t" + Verdict.MALFORMED;
+        }
+
+        String signedJsonData;
+        try {
+            signedJsonData = new String(Base64.getDecoder().decode(fields[1]), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return token + "\t" + Verdict.MALFORMED;
+        }
+        String b64Signature = fields[2];
+
+        Verdict verdict = cache.get(token, signedJsonData, b64Signature);
+        if (verdict == null) {
+            verdict = verifier.verify(signedJsonData, b64Signature);
+            if (verdict != Verdict.MALFORMED) {
+                cache.put(token, signedJsonData, b64Signature, verdict);
+            }
+        }
+        return token + "\t" + verdict;
+    }
+
+    /**
+     * @return The Content-Length header, or 0 if it is missing
+     */
+    private static long contentLength(HttpExchange exchange) {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        return contentLength != null ? Long.parseLong(contentLength.trim()) : 0;
+    }
+
+    /**
+     * @return The request body, or null if it is larger than {@link #MAX_REQUEST_BYTES}
+     */
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        // The header may be missing (chunked requests), so the read itself is bounded as well
+        InputStream in = exchange.getRequestBody();
+        byte[] body = in.readNBytes(MAX_REQUEST_BYTES + 1);
+        return body.length > MAX_REQUEST_BYTES ? null : body;
+    }
+
+    private static List<String> splitLines(byte[] body) {
+        List<String> lines = new ArrayList<>();
+        for (String line : new String(body, StandardCharsets.UTF_8).split("\r?\n")) {
+            if (!line.isEmpty() && lines.size() <= MAX_BATCH_SIZE) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Fun Flowers copyright 2025 Flexion Mobile Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flexion.funflowers.verifier;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Server side version of the app's PurchaseValidator. The public key is decoded
+ * once when the verifier is created instead of on every purchase. {@link Signature}
+ * objects are not thread safe, so every worker thread keeps its own instance.
+ */
+public class PurchaseVerifier {
+
+    /**
+     * The Flexion public key used to sign purchases, base64 encoded X.509
+     */
+    public static final String FLEXION_PUBLIC_KEY = "MIGfMA0GCSqGSIb3DQEBAQUAA4GNADCBiQKBgQCyRJrfK4rDPgQ2fQzZaABgcA4OuOY/3wO+Q3V2/g9GwGhPQbfJ7UKVsi"
+            + "TUIyThrAwPnn9FsSjUgTfqSUKm8oEVvJBV8cYWp2meKbpSpM/5Y5snj8B6nuCzLCFhbtMD6YIk0PXvJHWWFWXcP8BIUjSX7EtPi2E+8GaqDWtMYVPgfwIDAQAB";
+
+    /**
+     * The algorithm Flexion uses to sign the purchase JSON
+     */
+    static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
+
+    private final PublicKey publicKey;
+
+    private final ThreadLocal<Signature> signatures = ThreadLocal.withInitial(PurchaseVerifier::newSignature);
+
+    public PurchaseVerifier(PublicKey publicKey) {
+        this.publicKey = publicKey;
+    }
+
+    /**
+     * Creates a verifier for a base64 encoded X.509 public key
+     *
+     * @param b64PublicKey - The key, e.g. {@link #FLEXION_PUBLIC_KEY}
+     */
+    public static PurchaseVerifier fromBase64Key(String b64PublicKey) throws GeneralSecurityException {
+        byte[] decodedKey = Base64.getDecoder().decode(b64PublicKey);
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        return new PurchaseVerifier(keyFactory.generatePublic(new X509EncodedKeySpec(decodedKey)));
+    }
+
+    /**
+     * Checks the signature of a purchase
+     *
+     * @param signedJsonData           - The purchase JSON as returned by the billing service
+     * @param b64SignatureToVerifyWith - The base64 encoded signature of the purchase JSON
+     * @return The verdict for this purchase
+     */
+    public Verdict verify(String signedJsonData, String b64SignatureToVerifyWith) {
+        byte[] signatureToVerifyWith;
+        try {
+            // Lenient like the device check, which skips line breaks and whitespace
+            signatureToVerifyWith = Base64.getMimeDecoder().decode(b64SignatureToVerifyWith);
+        } catch (IllegalArgumentException e) {
+            return Verdict.MALFORMED;
+        }
+
+        Signature contentSignature = signatures.get();
+        try {
+            contentSignature.initVerify(publicKey);
+            contentSignature.update(signedJsonData.getBytes(StandardCharsets.UTF_8));
+            return contentSignature.verify(signatureToVerifyWith) ? Verdict.VALID : Verdict.INVALID;
+        } catch (GeneralSecurityException e) {
+            // A signature of the wrong length or encoding ends up here
+            return Verdict.MALFORMED;
+        }
+    }
+
+    private static Signature newSignature() {
+        try {
+            return Signature.getInstance(SIGNATURE_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(SIGNATURE_ALGORITHM + " is not available on this JVM", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Fun Flowers copyright 2025 Flexion Mobile Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flexion.funflowers.verifier;
+
+/**
+ * The outcome of verifying a single purchase
+ */
+public enum Verdict {
+    /**
+     * The signature matches the purchase data
+     */
+    VALID,
+
+    /**
+     * The signature does not match the purchase data
+     */
+    INVALID,
+
+    /**
+     * The batch line or the signature could not be decoded, so nothing was verified
+     */
+    MALFORMED
+}
@@ -0,0 +1,85 @@
+/*
+ * Fun Flowers copyright 2025 Flexion Mobile Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flexion.funflowers.verifier;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Signs the verdicts of a batch so that the app can tell a reply of this server
+ * from a stubbed or intercepted one. The signature covers the request body followed
+ * by the verdict lines, which ties every verdict to the exact purchase data it was
+ * given for. One signature is made per batch, not per purchase.
+ */
+public class VerdictSigner {
+
+    /**
+     * The algorithm used to sign the verdicts, the app verifies with the same one
+     */
+    static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+    private final PrivateKey privateKey;
+
+    private final ThreadLocal<Signature> signatures = ThreadLocal.withInitial(VerdictSigner::newSignature);
+
+    public VerdictSigner(PrivateKey privateKey) {
+        this.privateKey = privateKey;
+    }
+
+    /**
+     * Creates a signer for a PKCS#8 encoded RSA private key
+     */
+    public static VerdictSigner fromPkcs8(byte[] encodedKey) throws GeneralSecurityException {
+        return new VerdictSigner(KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(encodedKey)));
+    }
+
+    /**
+     * Generates a new 2048 bit RSA key pair for signing verdicts
+     */
+    public static KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * @param requestBody  - The request body exactly as it was received
+     * @param verdictLines - The verdict lines of the response
+     * @return The base64 encoded signature over both
+     */
+    public String sign(byte[] requestBody, byte[] verdictLines) throws GeneralSecurityException {
+        Signature signature = signatures.get();
+        signature.initSign(privateKey);
+        signature.update(requestBody);
+        signature.update(verdictLines);
+        return Base64.getEncoder().encodeToString(signature.sign());
+    }
+
+    private static Signature newSignature() {
+        try {
+            return Signature.getInstance(SIGNATURE_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(SIGNATURE_ALGORITHM + " is not available on this JVM", e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Fun Flowers copyright 2025 Flexion Mobile Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flexion.funflowers.verifier;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Idempotency cache keyed by purchase token. The app resends purchases that it
+ * has not consumed yet (e.g. on every start), so the same token is verified many
+ * times. A cached verdict is only returned when the purchase JSON and signature
+ * are the same as the ones it was computed for, so reusing a valid token with
+ * other data does not get a free pass.<br><br>
+ * <p>
+ * The least recently used entries are evicted once the capacity is reached.
+ */
+public class VerificationCache {
+
+    private final Map<String, Entry> entries;
+
+    private long hits;
+
+    private long misses;
+
+    public VerificationCache(final int capacity) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return The cached verdict, or null if this exact purchase has not been verified yet
+     */
+    public synchronized Verdict get(String token, String signedJsonData, String b64Signature) {
+        Entry entry = entries.get(token);
+        if (entry != null && entry.signedJsonData.equals(signedJsonData) && entry.b64Signature.equals(b64Signature)) {
+            hits++;
+            return entry.verdict;
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(String token, String signedJsonData, String b64Signature, Verdict verdict) {
+        entries.put(token, new Entry(signedJsonData, b64Signature, verdict));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private record Entry(String signedJsonData, String b64Signature, Verdict verdict) {
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Fun Flowers copyright 2025 Flexion Mobile Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flexion.funflowers.verifier;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Purchase verification service<br><br>
+ * <p>
+ * A small HTTP server that checks purchase signatures on behalf of the app, so the
+ * verification does not have to run on the device. It exposes a single batch endpoint,
+ * see {@link BatchVerificationHandler} for the wire format.<br><br>
+ * <p>
+ * Signature checks run on a worker pool sized to the number of cores. The HTTP threads
+ * only parse requests and wait for the workers, so they have a pool of their own.
+ * Verdicts are cached by purchase token, see {@link VerificationCache}, and every
+ * batch reply is signed, see {@link VerdictSigner}.<br><br>
+ * <p>
+ * Usage: <code>VerificationServer [port] [verdict-key.pk8]</code>, the default port is
+ * {@value #DEFAULT_PORT}. The key file is the PKCS#8 encoded RSA private key used to sign
+ * verdicts. Without it a new key pair is generated on every start and its public key is
+ * logged, which is only useful during development.
+ */
+public class VerificationServer {
+
+    private static final Logger LOG = Logger.getLogger(VerificationServer.class.getName());
+
+    /**
+     * The path of the batch verification endpoint
+     */
+    public static final String BATCH_PATH = "/verify/batch";
+
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * The number of verdicts kept in the idempotency cache
+     */
+    public static final int DEFAULT_CACHE_CAPACITY = 100_000;
+
+    private final HttpServer server;
+
+    private final ExecutorService workers;
+
+    private final ExecutorService httpThreads;
+
+    private final VerificationCache cache;
+
+    public VerificationServer(InetSocketAddress address, PurchaseVerifier verifier, VerificationCache cache,
+                              VerdictSigner signer) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.cache = cache;
+        this.workers = Executors.newFixedThreadPool(cores);
+        this.httpThreads = Executors.newFixedThreadPool(cores * 2);
+        this.server = HttpServer.create(address, 0);
+        server.createContext(BATCH_PATH, new BatchVerificationHandler(verifier, cache, signer, workers));
+        server.setExecutor(httpThreads);
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Purchase verification server listening on port " + getPort()
+                + " with " + Runtime.getRuntime().availableProcessors() + " workers");
+    }
+
+    public void stop() {
+        server.stop(0);
+        httpThreads.shutdown();
+        workers.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public VerificationCache getCache() {
+        return cache;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        VerdictSigner signer;
+        if (args.length > 1) {
+            signer = VerdictSigner.fromPkcs8(Files.readAllBytes(Path.of(args[1])));
+        } else {
+            KeyPair keyPair = VerdictSigner.generateKeyPair();
+            signer = new VerdictSigner(keyPair.getPrivate());
+            LOG.warning("No verdict key given, generated one. Set VERIFICATION_SERVER_PUBLIC_KEY in the app to: "
+                    + Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        }
+
+        VerificationServer server = new VerificationServer(new InetSocketAddress(port),
+                PurchaseVerifier.fromBase64Key(PurchaseVerifier.FLEXION_PUBLIC_KEY),
+                new VerificationCache(DEFAULT_CACHE_CAPACITY), signer);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+    }
+}